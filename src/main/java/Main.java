@@ -1,6 +1,11 @@
 import args.CommandLineArgs;
 import com.beust.jcommander.JCommander;
 import server.DNSServer;
+import server.DoHServer;
+import server.DoTServer;
+import server.TlsContexts;
+
+import javax.net.ssl.SSLContext;
 
 public class Main {
     public static void main(String[] args) {
@@ -11,6 +16,16 @@ public class Main {
                 .parse(args);
 
         DNSServer server = new DNSServer(commandLineArgs.getResolver());
+        // Exercise the parse and encode paths before the socket opens so the first queries don't pay for it.
+        server.warmUp();
+        if (commandLineArgs.isWarmupOnly()) {
+            return;
+        }
+        if (commandLineArgs.getTlsKeyStore() != null) {
+            SSLContext sslContext = TlsContexts.fromKeyStore(commandLineArgs.getTlsKeyStore(), commandLineArgs.getTlsPassword());
+            new DoTServer(server, sslContext, commandLineArgs.getDotPort()).start();
+            new DoHServer(server, sslContext, commandLineArgs.getDohPort()).start();
+        }
         server.start();
     }
 }
@@ -7,7 +7,42 @@ public class CommandLineArgs {
     @Parameter(names = "--resolver", description = "Resolver to forward queries to")
     private String resolver;
 
+    @Parameter(names = "--warmup-only", description = "Run the warm-up routine and exit (used to build the AppCDS archive)")
+    private boolean warmupOnly;
+
+    @Parameter(names = "--tls-keystore", description = "Key store holding the TLS certificate; enables DoT and DoH")
+    private String tlsKeyStore;
+
+    @Parameter(names = "--tls-password", description = "Password for the TLS key store")
+    private String tlsPassword;
+
+    @Parameter(names = "--dot-port", description = "Port for DNS over TLS")
+    private int dotPort = 853;
+
+    @Parameter(names = "--doh-port", description = "Port for DNS over HTTPS")
+    private int dohPort = 443;
+
     public String getResolver() {
         return resolver;
     }
+
+    public boolean isWarmupOnly() {
+        return warmupOnly;
+    }
+
+    public String getTlsKeyStore() {
+        return tlsKeyStore;
+    }
+
+    public String getTlsPassword() {
+        return tlsPassword;
+    }
+
+    public int getDotPort() {
+        return dotPort;
+    }
+
+    public int getDohPort() {
+        return dohPort;
+    }
 }
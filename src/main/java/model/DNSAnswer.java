@@ -1,6 +1,6 @@
 package model;
 
-import util.StreamUtils;
+import util.BufferUtils;
 
 import java.nio.ByteBuffer;
 
@@ -22,15 +22,25 @@ public class DNSAnswer {
     }
 
     public byte[] toBytes() {
-        return StreamUtils.toBytes(dos -> {
-            dos.write(this.name.toBytes());
-            dos.writeShort(this.type);
-            dos.writeShort(this.clazz);
-            dos.writeInt(this.ttl);
-            byte[] temp = this.rdata.toBytes();
-            dos.writeShort(temp.length);
-            dos.write(temp);
-        });
+        return BufferUtils.toBytes(this::writeTo);
+    }
+
+    public void writeTo(ByteBuffer out) {
+        this.name.writeTo(out);
+        out.putShort(this.type);
+        out.putShort(this.clazz);
+        out.putInt(this.ttl);
+        int rdLengthIndex = out.position();
+        out.putShort((short) 0);
+        this.rdata.writeTo(out);
+        out.putShort(rdLengthIndex, (short) (out.position() - rdLengthIndex - 2));
+    }
+
+    /**
+     * Returns true if {@code other} has the same owner name, type and class, i.e. belongs to the same RRset.
+     */
+    public boolean isSameRRset(DNSAnswer other) {
+        return name.equals(other.name) && type == other.type && clazz == other.clazz;
     }
 
     public static DNSAnswer fromByteBuffer(ByteBuffer data) {
@@ -39,7 +49,10 @@ public class DNSAnswer {
         short clazz = data.getShort();
         int ttl = data.getInt();
         short rdLength = data.getShort();
-        byte[] rdBytes = new byte[rdLength];
+        if (Short.toUnsignedInt(rdLength) > data.remaining()) {
+            throw new DNSFormatException("RDATA length " + Short.toUnsignedInt(rdLength) + " runs past the end of the packet");
+        }
+        byte[] rdBytes = new byte[Short.toUnsignedInt(rdLength)];
         data.get(rdBytes);
         return new DNSAnswer(name, type, clazz, ttl, rdLength, RData.fromBytes(rdBytes));
     }
@@ -0,0 +1,14 @@
+package model;
+
+/**
+ * Thrown when a packet cannot be decoded as a well-formed DNS message. Servers answer these with FORMERR.
+ */
+public class DNSFormatException extends RuntimeException {
+    public DNSFormatException(String message) {
+        super(message);
+    }
+
+    public DNSFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
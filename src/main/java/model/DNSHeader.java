@@ -1,16 +1,20 @@
 package model;
 
-import util.StreamUtils;
+import util.BufferUtils;
 
 import java.nio.ByteBuffer;
 
 public class DNSHeader implements Cloneable {
+    public static final int SIZE = 12;
+    public static final int RCODE_FORMAT_ERROR = 1;
+    public static final int RCODE_NOT_IMPLEMENTED = 4;
+
     private short id;
     private short flags;
     private short qdCount;
     private short anCount;
-    private final short nsCount;
-    private final short arCount;
+    private short nsCount;
+    private short arCount;
 
     private DNSHeader(short id, short flags, short qdCount, short anCount, short nsCount, short arCount) {
         this.id = id;
@@ -25,6 +29,10 @@ public class DNSHeader implements Cloneable {
         this.id = id;
     }
 
+    public short getId() {
+        return id;
+    }
+
     public void setResponse() {
         flags = (short) (flags | 0x8000);
     }
@@ -41,6 +49,17 @@ public class DNSHeader implements Cloneable {
         flags |= (short) code;
     }
 
+    /**
+     * Returns a response header with the given RCODE and empty sections, keeping only the ID, opcode and RD
+     * bit of this header.
+     */
+    public DNSHeader toErrorResponse(int code) {
+        var response = new DNSHeader(id, (short) (flags & 0x7900), (short) 0, (short) 0, (short) 0, (short) 0);
+        response.setResponse();
+        response.setRCode(code);
+        return response;
+    }
+
     public short getQdCount() {
         return qdCount;
     }
@@ -57,15 +76,40 @@ public class DNSHeader implements Cloneable {
         this.anCount = anCount;
     }
 
+    public void setTruncated() {
+        flags = (short) (flags | 0x0200);
+    }
+
+    public boolean isTruncated() {
+        return (flags & 0x0200) != 0;
+    }
+
+    public void setNsCount(short nsCount) {
+        this.nsCount = nsCount;
+    }
+
+    public void setArCount(short arCount) {
+        this.arCount = arCount;
+    }
+
+    public void writeTo(ByteBuffer out) {
+        out.putShort(id);
+        out.putShort(flags);
+        out.putShort(qdCount);
+        out.putShort(anCount);
+        out.putShort(nsCount);
+        out.putShort(arCount);
+    }
+
     public byte[] toBytes() {
-        return StreamUtils.toBytes(dos -> {
-            dos.writeShort(id);
-            dos.writeShort(flags);
-            dos.writeShort(qdCount);
-            dos.writeShort(anCount);
-            dos.writeShort(nsCount);
-            dos.writeShort(arCount);
-        });
+        return BufferUtils.toBytes(this::writeTo);
+    }
+
+    /**
+     * Checks the QR bit of a raw packet without decoding it, so responses can be dropped before anything else.
+     */
+    public static boolean isResponse(ByteBuffer packet) {
+        return packet.remaining() > 2 && (packet.get(packet.position() + 2) & 0x80) != 0;
     }
 
     public static DNSHeader fromByteBuffer(ByteBuffer data) {
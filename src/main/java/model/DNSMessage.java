@@ -1,12 +1,16 @@
 package model;
 
-import util.StreamUtils;
+import util.BufferUtils;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 public class DNSMessage {
+    //Smallest possible encodings: a root name plus type and class, and additionally TTL and RDLENGTH.
+    private static final int MIN_QUESTION_SIZE = 5;
+    private static final int MIN_ANSWER_SIZE = 11;
 
     private final DNSHeader header;
     private final List<DNSQuestion> questions;
@@ -39,29 +43,46 @@ public class DNSMessage {
     }
 
     public byte[] toBytes() {
-        return StreamUtils.toBytes(dos -> {
-            dos.write(header.toBytes());
+        return BufferUtils.toBytes(buffer -> {
+            header.writeTo(buffer);
             for (DNSQuestion question : questions) {
-                dos.write(question.toBytes());
+                question.writeTo(buffer);
             }
             if (answers != null && !answers.isEmpty()) {
                 for (DNSAnswer answer : answers) {
-                    dos.write(answer.toBytes());
+                    answer.writeTo(buffer);
                 }
             }
         });
     }
 
+    /**
+     * Decodes a message, rejecting anything malformed with a {@link DNSFormatException}. Section counts are
+     * checked against the bytes available before anything is allocated, so bad input costs bounded work.
+     */
     public static DNSMessage fromByteBuffer(ByteBuffer data) {
-        DNSHeader header = DNSHeader.fromByteBuffer(data);
-        List<DNSQuestion> questions = new ArrayList<>();
-        for (int i = 0; i < header.getQdCount(); i++) {
-            questions.add(DNSQuestion.fromByteBuffer(data));
-        }
-        List<DNSAnswer> answers = new ArrayList<>();
-        for (int i = 0; i < header.getAnCount(); i++) {
-            answers.add(DNSAnswer.fromByteBuffer(data));
+        try {
+            if (data.remaining() < DNSHeader.SIZE) {
+                throw new DNSFormatException("Packet is shorter than a DNS header");
+            }
+            DNSHeader header = DNSHeader.fromByteBuffer(data);
+            int qdCount = Short.toUnsignedInt(header.getQdCount());
+            int anCount = Short.toUnsignedInt(header.getAnCount());
+            if (qdCount * MIN_QUESTION_SIZE + anCount * MIN_ANSWER_SIZE > data.remaining()) {
+                throw new DNSFormatException("Section counts (qd=" + qdCount + ", an=" + anCount +
+                        ") do not fit in " + data.remaining() + " bytes");
+            }
+            List<DNSQuestion> questions = new ArrayList<>(qdCount);
+            for (int i = 0; i < qdCount; i++) {
+                questions.add(DNSQuestion.fromByteBuffer(data));
+            }
+            List<DNSAnswer> answers = new ArrayList<>(anCount);
+            for (int i = 0; i < anCount; i++) {
+                answers.add(DNSAnswer.fromByteBuffer(data));
+            }
+            return new DNSMessage(header, questions, answers);
+        } catch (BufferUnderflowException e) {
+            throw new DNSFormatException("Message runs past the end of the packet", e);
         }
-        return new DNSMessage(header, questions, answers);
     }
 }
@@ -1,45 +1,75 @@
 package model;
 
-import util.StreamUtils;
+import util.BufferUtils;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.StringJoiner;
 
 record DNSName(String name) {
+    static final int MAX_LENGTH = 255;
 
     public byte[] toBytes() {
-        return StreamUtils.toBytes(dos -> {
-            if (!name.isEmpty()) {
-                for (String label : name.split("\\.")) {
-                    byte[] labelBytes = label.getBytes(StandardCharsets.UTF_8);
-                    dos.writeByte(labelBytes.length);
-                    dos.write(labelBytes);
-                }
+        return BufferUtils.toBytes(this::writeTo);
+    }
+
+    public void writeTo(ByteBuffer out) {
+        if (!name.isEmpty()) {
+            for (String label : name.split("\\.")) {
+                byte[] labelBytes = label.getBytes(StandardCharsets.ISO_8859_1);
+                out.put((byte) labelBytes.length);
+                out.put(labelBytes);
             }
-            dos.writeByte(0);
-        });
+        }
+        out.put((byte) 0);
     }
 
     public static DNSName fromByteBuffer(ByteBuffer data) {
-        byte len;
+        int len;
         boolean isCompressed = false;
         StringJoiner labels = new StringJoiner(".");
         int pos = 0;
+        //Start of the label run currently being read. Every pointer has to jump strictly before it, so the
+        //runs move towards the start of the packet and a pointer loop can't happen.
+        int runStart = data.position();
+        //Wire length of the name so far, counting the terminating zero byte.
+        int length = 1;
 
-        while ((len = data.get()) != 0) {
+        while ((len = readUnsigned(data)) != 0) {
             if ((len & 0xC0) == 0xC0) {
                 //Compression applies to the rest of label list in this record.
-                isCompressed = true;
                 //Mask off the 2 high bits of the pointer to get the remaining 6, concatenate that with the next
                 //byte (lower bits) to get our offset.
-                int offset = ((len & 0x3F) << 8) | (data.get() & 0xFF);
-                pos = data.position();
+                int offset = ((len & 0x3F) << 8) | readUnsigned(data);
+                if (offset >= runStart) {
+                    throw new DNSFormatException("Compression pointer to " + offset + " does not point backwards");
+                }
+                if (!isCompressed) {
+                    pos = data.position();
+                    isCompressed = true;
+                }
                 data.position(offset);
+                runStart = offset;
+            } else if ((len & 0xC0) != 0) {
+                throw new DNSFormatException("Unsupported label type 0x" + Integer.toHexString(len & 0xC0));
             } else {
+                length += len + 1;
+                if (length > MAX_LENGTH) {
+                    throw new DNSFormatException("Name exceeds " + MAX_LENGTH + " bytes");
+                }
+                if (len > data.remaining()) {
+                    throw new DNSFormatException("Label runs past the end of the packet");
+                }
                 byte[] label = new byte[len];
                 data.get(label);
-                labels.add(new String(label, StandardCharsets.UTF_8));
+                //A '.' inside a label would be split into two labels when the name is encoded again.
+                for (byte b : label) {
+                    if (b == '.') {
+                        throw new DNSFormatException("Label contains '.'");
+                    }
+                }
+                //ISO-8859-1 maps every byte to one char and back, so the label is re-encoded unchanged.
+                labels.add(new String(label, StandardCharsets.ISO_8859_1));
             }
         }
         //whoops! restore the pointer *outside* of the while loop.
@@ -49,4 +79,10 @@ record DNSName(String name) {
         return new DNSName(labels.toString());
     }
 
+    private static int readUnsigned(ByteBuffer data) {
+        if (!data.hasRemaining()) {
+            throw new DNSFormatException("Name runs past the end of the packet");
+        }
+        return data.get() & 0xFF;
+    }
 }
@@ -1,17 +1,13 @@
 package model;
 
-import util.StreamUtils;
-
 import java.nio.ByteBuffer;
 
 public record DNSQuestion(DNSName name, short type, short clazz) {
 
-    public byte[] toBytes() {
-        return StreamUtils.toBytes(dos -> {
-            dos.write(this.name.toBytes());
-            dos.writeShort(this.type);
-            dos.writeShort(this.clazz);
-        });
+    public void writeTo(ByteBuffer out) {
+        this.name.writeTo(out);
+        out.putShort(this.type);
+        out.putShort(this.clazz);
     }
 
     public static DNSQuestion fromByteBuffer(ByteBuffer data) {
@@ -0,0 +1,110 @@
+package model;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Writes a response straight into a buffer that starts small and grows up to the transport's limit. When a
+ * question or RRset doesn't fit within the limit, it is rolled back, the TC bit is set and everything added
+ * afterwards is ignored, so the result is always a complete message no larger than the limit.
+ */
+public class DNSResponseBuilder {
+    public static final int MAX_UDP_SIZE = 512;
+    public static final int MAX_STREAM_SIZE = 65_535;
+    private static final int INITIAL_CAPACITY = 512;
+
+    private final DNSHeader header;
+    private final int maxSize;
+    private ByteBuffer buffer;
+    private int qdCount = 0;
+    private int anCount = 0;
+    private boolean truncated = false;
+
+    public DNSResponseBuilder(DNSHeader header, int maxSize) {
+        this.header = header;
+        this.maxSize = maxSize;
+        this.buffer = ByteBuffer.allocate(Math.min(maxSize, INITIAL_CAPACITY));
+        this.buffer.position(DNSHeader.SIZE);
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Marks the response as truncated and stops further appends, e.g. when an upstream answer was itself
+     * truncated and so is incomplete.
+     */
+    public void setTruncated() {
+        truncated = true;
+    }
+
+    public void addQuestion(DNSQuestion question) {
+        if (anCount > 0) {
+            throw new IllegalStateException("Questions must be added before answers");
+        }
+        if (append(question::writeTo)) {
+            qdCount++;
+        }
+    }
+
+    /**
+     * Appends answers, keeping each run of records from the same RRset together: an RRset is written whole
+     * or not at all.
+     */
+    public void addAnswers(List<DNSAnswer> answers) {
+        int start = 0;
+        while (start < answers.size() && !truncated) {
+            int end = start + 1;
+            while (end < answers.size() && answers.get(end).isSameRRset(answers.get(start))) {
+                end++;
+            }
+            var rrset = answers.subList(start, end);
+            if (append(out -> rrset.forEach(answer -> answer.writeTo(out)))) {
+                anCount += rrset.size();
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Fills in the header and returns the encoded message, backed by this builder's array.
+     */
+    public ByteBuffer build() {
+        header.setQdCount((short) qdCount);
+        header.setAnCount((short) anCount);
+        header.setNsCount((short) 0);
+        header.setArCount((short) 0);
+        if (truncated) {
+            header.setTruncated();
+        }
+        var message = buffer.duplicate().flip();
+        header.writeTo(buffer.duplicate().position(0));
+        return message;
+    }
+
+    private boolean append(Consumer<ByteBuffer> writer) {
+        if (truncated) {
+            return false;
+        }
+        int mark = buffer.position();
+        while (true) {
+            try {
+                writer.accept(buffer);
+                return true;
+            } catch (BufferOverflowException e) {
+                buffer.position(mark);
+                if (buffer.capacity() == maxSize) {
+                    truncated = true;
+                    return false;
+                }
+                // Only the question or RRset that overflowed is written again, into the larger buffer.
+                var grown = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, maxSize));
+                grown.put(buffer.array(), 0, mark);
+                buffer = grown;
+            }
+        }
+    }
+}
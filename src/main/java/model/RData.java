@@ -1,10 +1,9 @@
 package model;
 
-import util.StreamUtils;
-
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.stream.Collectors;
@@ -16,12 +15,12 @@ public class RData {
         this.data = data;
     }
 
-    public byte[] toBytes() {
-        return StreamUtils.toBytes(dos -> {
+    public void writeTo(ByteBuffer out) {
+        if (!data.isEmpty()) {
             for (String octet : data.split("\\.")) {
-                dos.writeByte(Integer.parseInt(octet));
+                out.put((byte) Integer.parseInt(octet));
             }
-        });
+        }
     }
 
     public static RData fromBytes(byte[] data) {
@@ -1,20 +1,26 @@
 package server;
 
 import model.*;
+import util.StreamUtils;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Collectors;
 
 public final class DNSServer {
     private static final int DEFAULT_PORT = 2053;
     private static final byte[] DEFAULT_IP = {8, 8, 8, 8};
     private static final int DEFAULT_TTL = 1800;
     private static final int BUFFER_SIZE = 512;
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final long FORWARD_DEADLINE_NANOS = 2_000_000_000L;
 
+    private final StartupStats startupStats = new StartupStats();
     private InetSocketAddress resolverAddress = null;
 
     public DNSServer(String resolver) {
@@ -23,16 +29,21 @@ public final class DNSServer {
 
     public void start() {
         try (var serverSocket = new DatagramSocket(DEFAULT_PORT)) {
+            startupStats.markBound();
             System.out.println("DNS Server started on port " + DEFAULT_PORT);
 
             while (true) {
                 try {
                     var requestPacket = receiveRequestPacket(serverSocket);
-                    var request = DNSMessage.fromByteBuffer(
-                            ByteBuffer.wrap(requestPacket.getData(), 0, requestPacket.getLength()));
-
-                    var response = handleRequest(request);
-                    sendResponse(serverSocket, response, requestPacket.getSocketAddress());
+                    var receivedNanos = System.nanoTime();
+                    var responseData = answer(
+                            ByteBuffer.wrap(requestPacket.getData(), 0, requestPacket.getLength()),
+                            DNSResponseBuilder.MAX_UDP_SIZE);
+                    if (responseData == null) {
+                        continue;
+                    }
+                    sendResponse(serverSocket, responseData, requestPacket.getSocketAddress());
+                    startupStats.record(receivedNanos, System.nanoTime());
                 } catch (IOException e) {
                     System.err.println("Error processing request: " + e.getMessage());
                 }
@@ -43,6 +54,63 @@ public final class DNSServer {
         }
     }
 
+    /**
+     * Answers a single wire-format query. This is the pipeline shared by the UDP loop and the TLS front ends,
+     * and is safe to call from multiple threads. The response is at most {@code maxResponseSize} bytes, with TC
+     * set if answers had to be left out. Returns null when the packet should be dropped, which includes any packet that
+     * is already a response so two servers can't keep answering each other.
+     */
+    public ByteBuffer answer(ByteBuffer requestData, int maxResponseSize) {
+        if (DNSHeader.isResponse(requestData)) {
+            return null;
+        }
+        try {
+            return handleRequest(DNSMessage.fromByteBuffer(requestData), maxResponseSize);
+        } catch (DNSFormatException e) {
+            System.err.println("Malformed request: " + e.getMessage());
+            return createFormatErrorResponse(requestData);
+        }
+    }
+
+    /**
+     * Runs the parse, answer and encode path on a synthetic query before the socket opens. The iteration count
+     * is enough for C1 to compile the hot methods but stays below the C2 thresholds, trading peak code quality
+     * for a short startup. Always uses the hardcoded answer, never the upstream resolver.
+     */
+    public void warmUp() {
+        var query = createWarmUpQuery();
+        var checksum = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            var request = DNSMessage.fromByteBuffer(ByteBuffer.wrap(query));
+            var response = new DNSResponseBuilder(createResponseHeader(request), DNSResponseBuilder.MAX_UDP_SIZE);
+            request.getQuestions().forEach(response::addQuestion);
+            addDefaultAnswers(request, response);
+            checksum += response.build().remaining();
+        }
+        if (checksum <= 0) {
+            throw new IllegalStateException("Warm-up produced no output");
+        }
+    }
+
+    private static byte[] createWarmUpQuery() {
+        return StreamUtils.toBytes(dos -> {
+            dos.writeShort(1234);  // id
+            dos.writeShort(0x0100); // flags: standard query, recursion desired
+            dos.writeShort(2);     // qdCount
+            dos.writeShort(0);     // anCount
+            dos.writeShort(0);     // nsCount
+            dos.writeShort(0);     // arCount
+            // www.example.com, A, IN
+            dos.write(new byte[]{3, 'w', 'w', 'w', 7, 'e', 'x', 'a', 'm', 'p', 'l', 'e', 3, 'c', 'o', 'm', 0});
+            dos.writeShort(1);
+            dos.writeShort(1);
+            // mail -> pointer to example.com at offset 16, A, IN
+            dos.write(new byte[]{4, 'm', 'a', 'i', 'l', (byte) 0xC0, 16});
+            dos.writeShort(1);
+            dos.writeShort(1);
+        });
+    }
+
     private DatagramPacket receiveRequestPacket(DatagramSocket serverSocket) throws IOException {
         var buffer = new byte[BUFFER_SIZE];
         var packet = new DatagramPacket(buffer, buffer.length);
@@ -50,86 +118,165 @@ public final class DNSServer {
         return packet;
     }
 
-    private DNSMessage handleRequest(DNSMessage request) {
-        var responseHeader = createResponseHeader(request);
-        var answers = resolverAddress != null ?
-                forwardToResolver(request, resolverAddress) :
-                generateDefaultResponses(request);
-
-        return new DNSMessage(responseHeader, request.getQuestions(), answers);
+    private ByteBuffer handleRequest(DNSMessage request, int maxResponseSize) {
+        var response = new DNSResponseBuilder(createResponseHeader(request), maxResponseSize);
+        request.getQuestions().forEach(response::addQuestion);
+        if (resolverAddress != null) {
+            forwardToResolver(request, resolverAddress, response, maxResponseSize);
+        } else {
+            addDefaultAnswers(request, response);
+        }
+        return response.build();
     }
 
-    private List<DNSAnswer> forwardToResolver(DNSMessage request, InetSocketAddress resolverAddr) {
+    private void forwardToResolver(DNSMessage request, InetSocketAddress resolverAddr, DNSResponseBuilder response,
+                                   int maxResponseSize) {
+        // One deadline for the whole request, however many questions it carries: the UDP loop is single threaded
+        // and answer() also runs on the TLS listeners' threads, so a silent upstream must not hold either for long.
+        var deadline = System.nanoTime() + FORWARD_DEADLINE_NANOS;
         try (var forwardSocket = new DatagramSocket()) {
-            return request.getQuestions().stream()
-                    .flatMap(question -> {
+            for (var question : request.getQuestions()) {
+                // Nothing more fits, so don't bother asking upstream.
+                if (response.isTruncated()) {
+                    break;
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    System.err.println("Forwarding deadline passed, skipping remaining questions");
+                    break;
+                }
+                try {
+                    var upstream = forwardSingleQuestion(question, request.getHeader(), forwardSocket, resolverAddr,
+                            deadline);
+                    // The client can take more than the 512 bytes UDP gave us, so fetch the full answer over TCP.
+                    if (upstream.getHeader().isTruncated() && maxResponseSize > BUFFER_SIZE) {
                         try {
-                            return forwardSingleQuestion(question, request.getHeader(), forwardSocket, resolverAddr).stream();
-                        } catch (IOException e) {
-                            System.err.println("Error forwarding question: " + e.getMessage());
-                            return java.util.stream.Stream.empty();
+                            upstream = forwardSingleQuestionOverTcp(question, request.getHeader(), resolverAddr, deadline);
+                        } catch (IOException | DNSFormatException e) {
+                            System.err.println("Error retrying question over TCP: " + e.getMessage());
                         }
-                    })
-                    .collect(Collectors.toList());
+                    }
+                    response.addAnswers(upstream.getAnswers());
+                    // An upstream answer cut short is incomplete; never pass it on as a full one.
+                    if (upstream.getHeader().isTruncated()) {
+                        response.setTruncated();
+                    }
+                } catch (IOException | DNSFormatException e) {
+                    System.err.println("Error forwarding question: " + e.getMessage());
+                }
+            }
         } catch (IOException e) {
             System.err.println("Error creating forwarding socket: " + e.getMessage());
-            return List.of();
         }
     }
 
-    private List<DNSAnswer> forwardSingleQuestion(DNSQuestion question, DNSHeader originalHeader,
-                                                  DatagramSocket socket, InetSocketAddress resolverAddr) throws IOException {
-        // Create a new header with a random ID
-        var forwardHeader = originalHeader.clone();
-        forwardHeader.setId((short) ThreadLocalRandom.current().nextInt(Short.MAX_VALUE));
-
-        // Create message with single question
-        var forwardMessage = new DNSMessage(forwardHeader, List.of(question));
-        var queryData = forwardMessage.toBytes();
+    private DNSMessage forwardSingleQuestion(DNSQuestion question, DNSHeader originalHeader, DatagramSocket socket,
+                                             InetSocketAddress resolverAddr, long deadline) throws IOException {
+        var forwardHeader = createForwardHeader(originalHeader);
+        var queryData = new DNSMessage(forwardHeader, List.of(question)).toBytes();
 
         // Send the query
         var queryPacket = new DatagramPacket(queryData, queryData.length, resolverAddr);
         socket.send(queryPacket);
 
-        // Receive the response
+        // Receive the response, skipping packets from anyone but the resolver and late replies to earlier
+        // questions, until the request's deadline
         var responseBuffer = new byte[BUFFER_SIZE];
         var responsePacket = new DatagramPacket(responseBuffer, responseBuffer.length);
-        socket.receive(responsePacket);
+        while (true) {
+            socket.setSoTimeout(remainingMillis(deadline));
+            socket.receive(responsePacket);
+            if (!resolverAddr.equals(responsePacket.getSocketAddress())) {
+                continue;
+            }
+            var responseMessage = DNSMessage.fromByteBuffer(
+                    ByteBuffer.wrap(responsePacket.getData(), 0, responsePacket.getLength()));
+            if (responseMessage.getHeader().getId() == forwardHeader.getId()) {
+                return responseMessage;
+            }
+        }
+    }
+
+    private DNSMessage forwardSingleQuestionOverTcp(DNSQuestion question, DNSHeader originalHeader,
+                                                    InetSocketAddress resolverAddr, long deadline) throws IOException {
+        var forwardHeader = createForwardHeader(originalHeader);
+        var queryData = new DNSMessage(forwardHeader, List.of(question)).toBytes();
+
+        try (var socket = new Socket()) {
+            socket.connect(resolverAddr, remainingMillis(deadline));
+            socket.setSoTimeout(remainingMillis(deadline));
+
+            // TCP messages are prefixed with a two byte length
+            var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeShort(queryData.length);
+            out.write(queryData);
+            out.flush();
+
+            var in = new DataInputStream(socket.getInputStream());
+            var responseData = new byte[in.readUnsignedShort()];
+            in.readFully(responseData);
+            var responseMessage = DNSMessage.fromByteBuffer(ByteBuffer.wrap(responseData));
+            if (responseMessage.getHeader().getId() != forwardHeader.getId()) {
+                throw new IOException("TCP reply ID does not match the forwarded query");
+            }
+            return responseMessage;
+        }
+    }
 
-        // Parse the response
-        var responseMessage = DNSMessage.fromByteBuffer(
-                ByteBuffer.wrap(responsePacket.getData(), 0, responsePacket.getLength()));
+    private static DNSHeader createForwardHeader(DNSHeader originalHeader) {
+        // Create a new header with a random ID
+        var forwardHeader = originalHeader.clone();
+        forwardHeader.setId((short) ThreadLocalRandom.current().nextInt(Short.MAX_VALUE));
+        return forwardHeader;
+    }
 
-        return responseMessage.getAnswers();
+    private static int remainingMillis(long deadline) throws SocketTimeoutException {
+        var remaining = (deadline - System.nanoTime()) / 1_000_000;
+        if (remaining <= 0) {
+            throw new SocketTimeoutException("Forwarding deadline passed");
+        }
+        return (int) remaining;
     }
 
-    private List<DNSAnswer> generateDefaultResponses(DNSMessage request) {
+    private void addDefaultAnswers(DNSMessage request, DNSResponseBuilder response) {
         var rData = RData.fromBytes(DEFAULT_IP);
 
-        return request.getQuestions().stream()
-                .map(question -> new DNSAnswer(
-                        question.name(),
-                        question.type(),
-                        question.clazz(),
-                        DEFAULT_TTL,
-                        (short) DEFAULT_IP.length,
-                        rData))
-                .collect(Collectors.toList());
+        for (var question : request.getQuestions()) {
+            response.addAnswers(List.of(new DNSAnswer(
+                    question.name(),
+                    question.type(),
+                    question.clazz(),
+                    DEFAULT_TTL,
+                    (short) DEFAULT_IP.length,
+                    rData)));
+        }
     }
 
     private DNSHeader createResponseHeader(DNSMessage request) {
         var responseHeader = request.getHeader().clone();
         if (responseHeader.getOpcode() != 0) {
-            responseHeader.setRCode(4); // Not implemented
+            responseHeader.setRCode(DNSHeader.RCODE_NOT_IMPLEMENTED);
         }
         responseHeader.setResponse();
         return responseHeader;
     }
 
-    private void sendResponse(DatagramSocket serverSocket, DNSMessage response,
+    /**
+     * Builds a FORMERR response echoing the request ID, or returns null when the packet is too short to have
+     * one and should be dropped.
+     */
+    private ByteBuffer createFormatErrorResponse(ByteBuffer requestData) {
+        if (requestData.limit() < DNSHeader.SIZE) {
+            return null;
+        }
+        var requestHeader = DNSHeader.fromByteBuffer(requestData.position(0));
+        return new DNSResponseBuilder(requestHeader.toErrorResponse(DNSHeader.RCODE_FORMAT_ERROR), DNSHeader.SIZE)
+                .build();
+    }
+
+    private void sendResponse(DatagramSocket serverSocket, ByteBuffer responseData,
                               SocketAddress requester) throws IOException {
-        var responseData = response.toBytes();
-        var responsePacket = new DatagramPacket(responseData, responseData.length, requester);
+        var responsePacket = new DatagramPacket(responseData.array(), responseData.arrayOffset(),
+                responseData.remaining(), requester);
         serverSocket.send(responsePacket);
     }
 
@@ -0,0 +1,126 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import model.DNSResponseBuilder;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * DNS over HTTPS (RFC 8484) front end serving GET and POST requests on {@link #PATH}. Connections are kept
+ * alive between requests, so the TLS handshake is amortized over many queries. Exchanges run on virtual
+ * threads, with open connections and in-flight exchanges both capped at {@link #MAX_CONNECTIONS}.
+ */
+public final class DoHServer {
+    private static final String PATH = "/dns-query";
+    private static final String CONTENT_TYPE = "application/dns-message";
+    private static final int MAX_MESSAGE_SIZE = DNSResponseBuilder.MAX_STREAM_SIZE;
+    private static final int MAX_CONNECTIONS = 1_000;
+
+    private final DNSServer dnsServer;
+    private final SSLContext sslContext;
+    private final int port;
+    private final Semaphore exchangePermits = new Semaphore(MAX_CONNECTIONS);
+    private HttpsServer server;
+
+    public DoHServer(DNSServer dnsServer, SSLContext sslContext, int port) {
+        this.dnsServer = dnsServer;
+        this.sslContext = sslContext;
+        this.port = port;
+    }
+
+    /**
+     * Binds the listening socket and serves requests on background threads.
+     */
+    public void start() {
+        // Without this the JDK server writes headers and body in separate segments and every response waits
+        // out the client's delayed ACK. Must be set before the first HttpServer is created.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        System.setProperty("jdk.httpserver.maxConnections", String.valueOf(MAX_CONNECTIONS));
+        try {
+            server = HttpsServer.create(new InetSocketAddress(port), 0);
+            server.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext(PATH, this::handle);
+            server.start();
+            System.out.println("DoH Server started on port " + getPort());
+        } catch (IOException e) {
+            System.err.println("Error starting DoH server: " + e.getMessage());
+            throw new DNSServer.ServerStartupException("Failed to start DoH server", e);
+        }
+    }
+
+    /**
+     * Returns the port the server is bound to, which differs from the requested one when that was 0.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!exchangePermits.tryAcquire()) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        try {
+            // Contexts match by prefix, so /dns-query-anything would otherwise land here too.
+            if (!PATH.equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] query;
+            switch (exchange.getRequestMethod()) {
+                case "GET" -> query = decodeGetQuery(exchange.getRequestURI().getRawQuery());
+                case "POST" -> query = exchange.getRequestBody().readNBytes(MAX_MESSAGE_SIZE + 1);
+                default -> {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+            }
+            if (query == null || query.length > MAX_MESSAGE_SIZE) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            var response = dnsServer.answer(ByteBuffer.wrap(query), DNSResponseBuilder.MAX_STREAM_SIZE);
+            if (response == null) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, response.remaining());
+            exchange.getResponseBody().write(response.array(), response.arrayOffset(), response.remaining());
+        } finally {
+            exchange.close();
+            exchangePermits.release();
+        }
+    }
+
+    private static byte[] decodeGetQuery(String rawQuery) {
+        if (rawQuery == null) {
+            return null;
+        }
+        for (String param : rawQuery.split("&")) {
+            if (param.startsWith("dns=")) {
+                try {
+                    return Base64.getUrlDecoder().decode(param.substring("dns=".length()));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
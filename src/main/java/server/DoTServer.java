@@ -0,0 +1,132 @@
+package server;
+
+import model.DNSResponseBuilder;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.*;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * DNS over TLS (RFC 7858) front end. Each connection is kept open for many length-prefixed queries so the
+ * handshake is paid once, and is closed after it has been idle for {@link #IDLE_TIMEOUT_MILLIS}. Connections
+ * run on virtual threads; at most {@link #MAX_CONNECTIONS} are served at once and any beyond that are closed
+ * straight away.
+ */
+public final class DoTServer {
+    private static final int IDLE_TIMEOUT_MILLIS = 30_000;
+    private static final int MAX_CONNECTIONS = 1_000;
+
+    private final DNSServer dnsServer;
+    private final SSLContext sslContext;
+    private final int port;
+    private final ExecutorService connectionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore connectionPermits = new Semaphore(MAX_CONNECTIONS);
+    private SSLServerSocket serverSocket;
+
+    public DoTServer(DNSServer dnsServer, SSLContext sslContext, int port) {
+        this.dnsServer = dnsServer;
+        this.sslContext = sslContext;
+        this.port = port;
+    }
+
+    /**
+     * Binds the listening socket and accepts connections on a background thread.
+     */
+    public void start() {
+        try {
+            serverSocket = (SSLServerSocket) sslContext.getServerSocketFactory().createServerSocket(port);
+        } catch (IOException e) {
+            System.err.println("Error starting DoT server: " + e.getMessage());
+            throw new DNSServer.ServerStartupException("Failed to start DoT server", e);
+        }
+        System.out.println("DoT Server started on port " + getPort());
+
+        var acceptThread = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    var socket = (SSLSocket) serverSocket.accept();
+                    if (!connectionPermits.tryAcquire()) {
+                        System.err.println("Too many DoT connections, closing " + socket.getRemoteSocketAddress());
+                        socket.close();
+                        continue;
+                    }
+                    connectionExecutor.execute(() -> {
+                        try {
+                            serve(socket);
+                        } finally {
+                            connectionPermits.release();
+                        }
+                    });
+                } catch (IOException e) {
+                    if (!serverSocket.isClosed()) {
+                        System.err.println("Error accepting DoT connection: " + e.getMessage());
+                    }
+                }
+            }
+        }, "dot-accept");
+        acceptThread.start();
+    }
+
+    /**
+     * Returns the port the server is bound to, which differs from the requested one when that was 0.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and closes the ones being served.
+     */
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing DoT server: " + e.getMessage());
+        }
+        connectionExecutor.shutdownNow();
+    }
+
+    private void serve(SSLSocket socket) {
+        var acceptedNanos = System.nanoTime();
+        var handshakeNanos = 0L;
+        var queries = 0;
+        try (socket) {
+            socket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            socket.startHandshake();
+            handshakeNanos = System.nanoTime() - acceptedNanos;
+
+            var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                byte[] query;
+                try {
+                    query = new byte[in.readUnsignedShort()];
+                } catch (EOFException | SocketTimeoutException e) {
+                    break;
+                }
+                in.readFully(query);
+
+                var response = dnsServer.answer(ByteBuffer.wrap(query), DNSResponseBuilder.MAX_STREAM_SIZE);
+                if (response == null) {
+                    break;
+                }
+                out.writeShort(response.remaining());
+                out.write(response.array(), response.arrayOffset(), response.remaining());
+                out.flush();
+                queries++;
+            }
+        } catch (IOException e) {
+            System.err.println("Error serving DoT connection: " + e.getMessage());
+        }
+        var totalMillis = (System.nanoTime() - acceptedNanos) / 1_000_000;
+        System.out.println("DoT connection closed: handshake " + handshakeNanos / 1_000 + " us, " + queries +
+                " queries in " + totalMillis + " ms");
+    }
+}
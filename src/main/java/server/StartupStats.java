@@ -0,0 +1,66 @@
+package server;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Tracks how long it takes the server to bind its socket and send its first answer, and the latency of the
+ * requests handled during the first second after that. The first-second report is printed by a one-shot timer
+ * so it appears even if traffic stops within that second.
+ */
+final class StartupStats {
+    private static final long WINDOW_MILLIS = 1_000;
+    private static final int MAX_SAMPLES = 65_536;
+
+    private final long[] samples = new long[MAX_SAMPLES];
+    private int sampleCount = 0;
+    private long boundUptimeMillis = -1;
+    private boolean firstAnswerSent = false;
+    private boolean reported = false;
+
+    synchronized void markBound() {
+        boundUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    synchronized void record(long receivedNanos, long sentNanos) {
+        if (reported) {
+            return;
+        }
+        if (!firstAnswerSent) {
+            firstAnswerSent = true;
+            System.out.println("First answer sent " + ManagementFactory.getRuntimeMXBean().getUptime() +
+                    " ms after JVM start (socket bound after " + boundUptimeMillis + " ms)");
+            scheduleReport();
+        }
+        if (sampleCount < MAX_SAMPLES) {
+            samples[sampleCount++] = sentNanos - receivedNanos;
+        }
+    }
+
+    private void scheduleReport() {
+        var timer = new Timer("startup-stats", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                report();
+                timer.cancel();
+            }
+        }, WINDOW_MILLIS);
+    }
+
+    private synchronized void report() {
+        reported = true;
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        System.out.printf("First second: %d requests, p50 %d us, p90 %d us, p99 %d us, max %d us%n",
+                sampleCount, percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                sorted[sorted.length - 1] / 1_000);
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000;
+    }
+}
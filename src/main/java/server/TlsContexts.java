@@ -0,0 +1,39 @@
+package server;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * Builds the server-side TLS context shared by the DoT and DoH listeners. Both use the same context so they
+ * share one session cache, letting clients resume sessions instead of paying for a full handshake.
+ */
+public final class TlsContexts {
+    private static final int SESSION_CACHE_SIZE = 10_000;
+    private static final int SESSION_TIMEOUT_SECONDS = 24 * 60 * 60;
+
+    private TlsContexts() {
+    }
+
+    public static SSLContext fromKeyStore(String path, String password) {
+        try {
+            var passwordChars = password != null ? password.toCharArray() : new char[0];
+            var keyStore = KeyStore.getInstance(new File(path), passwordChars);
+            var keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, passwordChars);
+
+            var context = SSLContext.getInstance("TLS");
+            context.init(keyManagerFactory.getKeyManagers(), null, null);
+            var sessions = context.getServerSessionContext();
+            sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+            sessions.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+            return context;
+        } catch (IOException | GeneralSecurityException e) {
+            System.err.println("Error loading TLS key store: " + e.getMessage());
+            throw new DNSServer.ServerStartupException("Failed to load TLS key store " + path, e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package util;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+public class BufferUtils {
+    private static final int INITIAL_CAPACITY = 512;
+    private static final int MAX_CAPACITY = 65_535;
+
+    /**
+     * Runs {@code writer} against a heap buffer and returns what it wrote. Starts at 512 bytes, the common case
+     * for a DNS message, and retries with a larger buffer on overflow up to the 65535-byte message limit.
+     */
+    public static byte[] toBytes(Consumer<ByteBuffer> writer) {
+        for (int capacity = INITIAL_CAPACITY; ; capacity = Math.min(capacity * 2, MAX_CAPACITY)) {
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            try {
+                writer.accept(buffer);
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            } catch (BufferOverflowException e) {
+                if (capacity == MAX_CAPACITY) {
+                    throw e;
+                }
+            }
+        }
+    }
+}
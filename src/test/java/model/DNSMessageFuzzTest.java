@@ -0,0 +1,98 @@
+package model;
+
+import org.testng.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+public class DNSMessageFuzzTest {
+
+    // Query for www.example.com and mail.example.com, A, IN, with the second name compressed.
+    private static final byte[] SEED = {
+            0x04, (byte) 0xD2, 0x01, 0x00, 0, 2, 0, 0, 0, 0, 0, 0,
+            3, 'w', 'w', 'w', 7, 'e', 'x', 'a', 'm', 'p', 'l', 'e', 3, 'c', 'o', 'm', 0, 0, 1, 0, 1,
+            4, 'm', 'a', 'i', 'l', (byte) 0xC0, 16, 0, 1, 0, 1
+    };
+
+    @DataProvider
+    public Object[][] corpus() {
+        return new Object[][]{
+                {"empty", new byte[0]},
+                {"short header", new byte[]{0x04, (byte) 0xD2, 0x01}},
+                {"max counts, no body", new byte[]{0, 1, 0, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0, 0, 0, 0}},
+                {"self pointer", new byte[]{0, 1, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, (byte) 0xC0, 12, 0, 1, 0, 1}},
+                {"pointer to header", new byte[]{0, 1, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 1, 'a', (byte) 0xC0, 12, 0, 1}},
+                {"pointer past end", new byte[]{0, 1, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, (byte) 0xFF, (byte) 0xFF, 0, 1, 0, 1}},
+                {"label past end", new byte[]{0, 1, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 63, 'a', 0, 1, 0, 1}},
+                {"negative rdLength", new byte[]{0, 1, (byte) 0x80, 0, 0, 0, 0, 1, 0, 0, 0, 0,
+                        0, 0, 1, 0, 1, 0, 0, 0, 0, (byte) 0xFF, (byte) 0xFF}},
+                {"rdLength past end", new byte[]{0, 1, (byte) 0x80, 0, 0, 0, 0, 1, 0, 0, 0, 0,
+                        0, 0, 1, 0, 1, 0, 0, 0, 0, 0, 4, 8, 8}},
+        };
+    }
+
+    @Test(dataProvider = "corpus", expectedExceptions = DNSFormatException.class, timeOut = 1000)
+    public void testCorpusIsRejected(String description, byte[] packet) {
+        DNSMessage.fromByteBuffer(ByteBuffer.wrap(packet));
+    }
+
+    @Test
+    public void testSeedParses() {
+        DNSMessage message = DNSMessage.fromByteBuffer(ByteBuffer.wrap(SEED));
+        assertEquals(message.getQuestions().get(1).name().name(), "mail.example.com", "Seed should parse");
+    }
+
+    @Test(timeOut = 10_000)
+    public void testRandomMutations() {
+        Random random = new Random(53);
+        List<byte[]> inputs = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            byte[] packet = SEED.clone();
+            int flips = 1 + random.nextInt(4);
+            for (int j = 0; j < flips; j++) {
+                packet[random.nextInt(packet.length)] = (byte) random.nextInt(256);
+            }
+            inputs.add(packet);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            byte[] packet = new byte[random.nextInt(64)];
+            random.nextBytes(packet);
+            inputs.add(packet);
+        }
+
+        int accepted = 0;
+        for (byte[] packet : inputs) {
+            DNSMessage message;
+            try {
+                message = DNSMessage.fromByteBuffer(ByteBuffer.wrap(packet));
+            } catch (DNSFormatException e) {
+                // Rejected cleanly; that's the expected outcome for most mutations.
+                continue;
+            }
+            accepted++;
+            assertRoundTrips(message);
+        }
+        assertTrue(accepted > 0, "Some mutations should still parse");
+    }
+
+    // Anything the decoder accepts must re-encode into a message that decodes to the same content.
+    private static void assertRoundTrips(DNSMessage message) {
+        byte[] encoded = message.toBytes();
+        DNSMessage reparsed = DNSMessage.fromByteBuffer(ByteBuffer.wrap(encoded));
+
+        assertEquals(reparsed.getQuestions().size(), message.getQuestions().size(), "Question count should survive");
+        assertEquals(reparsed.getAnswers().size(), message.getAnswers().size(), "Answer count should survive");
+        for (int i = 0; i < message.getQuestions().size(); i++) {
+            assertEquals(reparsed.getQuestions().get(i), message.getQuestions().get(i), "Question should survive");
+        }
+        for (int i = 0; i < message.getAnswers().size(); i++) {
+            assertEquals(reparsed.getAnswers().get(i).toBytes(), message.getAnswers().get(i).toBytes(),
+                    "Answer should survive");
+        }
+        assertEquals(reparsed.toBytes(), encoded, "Encoding should be stable");
+    }
+}
@@ -103,4 +103,21 @@ public class DNSMessageTest {
         assertEquals(deserializedAnswer.toBytes().length, originalAnswer.toBytes().length,
                 "Answer bytes length should match");
     }
-}
\ No newline at end of file
+
+    @Test(expectedExceptions = DNSFormatException.class)
+    public void testTruncatedMessage() {
+        byte[] bytes = new DNSMessage(header, questions, answers).toBytes();
+        DNSMessage.fromByteBuffer(ByteBuffer.wrap(bytes, 0, bytes.length - 3));
+    }
+
+    @Test
+    public void testErrorResponseHeader() {
+        DNSHeader errorHeader = header.toErrorResponse(DNSHeader.RCODE_FORMAT_ERROR);
+        ByteBuffer bytes = ByteBuffer.wrap(errorHeader.toBytes());
+
+        assertEquals(bytes.getShort(), (short) 1234, "ID should be echoed");
+        assertEquals(bytes.getShort(), (short) 0x8001, "QR bit and FORMERR should be set");
+        assertEquals(bytes.getShort(), (short) 0, "QdCount should be zero");
+        assertEquals(bytes.getShort(), (short) 0, "AnCount should be zero");
+    }
+}
@@ -112,4 +112,86 @@ public class DNSNameTest {
         byte[] longBytes = longName.toBytes();
         assertEquals(longBytes[0], 63, "First byte should be length of long label (63)");
     }
+
+    @Test(expectedExceptions = DNSFormatException.class)
+    public void testPointerLoop() {
+        // A pointer that points at itself
+        byte[] loop = {(byte) 0xC0, 0};
+        DNSName.fromByteBuffer(ByteBuffer.wrap(loop));
+    }
+
+    @Test(expectedExceptions = DNSFormatException.class)
+    public void testPointerLoopThroughLabel() {
+        // "a" followed by a pointer back to the start of the same name
+        byte[] loop = {1, 'a', (byte) 0xC0, 0};
+        DNSName.fromByteBuffer(ByteBuffer.wrap(loop));
+    }
+
+    @Test(expectedExceptions = DNSFormatException.class)
+    public void testForwardPointer() {
+        byte[] forward = {(byte) 0xC0, 2, 1, 'a', 0};
+        DNSName.fromByteBuffer(ByteBuffer.wrap(forward));
+    }
+
+    @Test
+    public void testChainedPointers() {
+        byte[] chained = {
+                3, 'c', 'o', 'm', 0,
+                7, 'e', 'x', 'a', 'm', 'p', 'l', 'e', (byte) 0xC0, 0,
+                3, 'w', 'w', 'w', (byte) 0xC0, 5
+        };
+        ByteBuffer buffer = ByteBuffer.wrap(chained);
+        buffer.position(15);
+
+        DNSName name = DNSName.fromByteBuffer(buffer);
+        assertEquals(name.name(), "www.example.com", "Chained pointers should be followed");
+        assertEquals(buffer.position(), 21, "Buffer position should be restored past the first pointer");
+    }
+
+    @Test(expectedExceptions = DNSFormatException.class)
+    public void testNameTooLong() {
+        // 5 labels of 63 bytes is 321 bytes on the wire, over the 255 byte limit
+        ByteBuffer buffer = ByteBuffer.allocate(5 * 64 + 1);
+        for (int i = 0; i < 5; i++) {
+            buffer.put((byte) 63);
+            buffer.put(new byte[63]);
+        }
+        buffer.put((byte) 0);
+        DNSName.fromByteBuffer(buffer.flip());
+    }
+
+    @Test(expectedExceptions = DNSFormatException.class)
+    public void testTruncatedLabel() {
+        byte[] truncated = {7, 'e', 'x', 'a'};
+        DNSName.fromByteBuffer(ByteBuffer.wrap(truncated));
+    }
+
+    @Test(expectedExceptions = DNSFormatException.class)
+    public void testMissingTerminator() {
+        byte[] unterminated = {3, 'c', 'o', 'm'};
+        DNSName.fromByteBuffer(ByteBuffer.wrap(unterminated));
+    }
+
+    @Test(expectedExceptions = DNSFormatException.class)
+    public void testReservedLabelType() {
+        byte[] reserved = {(byte) 0x80, 'a', 0};
+        DNSName.fromByteBuffer(ByteBuffer.wrap(reserved));
+    }
+
+    @Test
+    public void testNonAsciiLabelRoundTrip() {
+        // 63 bytes of 0xFF must be written back as the same 63 bytes, not expanded by a charset
+        byte[] nameBytes = new byte[65];
+        nameBytes[0] = 63;
+        Arrays.fill(nameBytes, 1, 64, (byte) 0xFF);
+
+        DNSName name = DNSName.fromByteBuffer(ByteBuffer.wrap(nameBytes));
+        assertEquals(name.toBytes(), nameBytes, "Label bytes should round trip unchanged");
+    }
+
+    @Test(expectedExceptions = DNSFormatException.class)
+    public void testLabelContainingDot() {
+        byte[] dotted = {3, 'a', '.', 'b', 0};
+        DNSName.fromByteBuffer(ByteBuffer.wrap(dotted));
+    }
 }
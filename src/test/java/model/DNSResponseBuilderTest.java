@@ -0,0 +1,132 @@
+package model;
+
+import org.testng.annotations.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import static org.testng.Assert.*;
+
+public class DNSResponseBuilderTest {
+
+    private DNSHeader header;
+    private DNSQuestion question;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        // Using reflection to access the private constructor of DNSHeader
+        java.lang.reflect.Constructor<DNSHeader> constructor =
+                DNSHeader.class.getDeclaredConstructor(short.class, short.class, short.class, short.class, short.class, short.class);
+        constructor.setAccessible(true);
+        // nsCount/arCount set as a client sending EDNS would; the builder writes no such sections
+        header = constructor.newInstance((short) 1234, (short) 0x8100, (short) 1, (short) 0, (short) 0, (short) 1);
+        question = new DNSQuestion(new DNSName("example.com"), (short) 1, (short) 1);
+    }
+
+    private static List<DNSAnswer> rrset(String name, int size) {
+        List<DNSAnswer> answers = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            byte[] ip = {10, 0, 0, (byte) i};
+            answers.add(new DNSAnswer(new DNSName(name), (short) 1, (short) 1, 3600, (short) ip.length, RData.fromBytes(ip)));
+        }
+        return answers;
+    }
+
+    @Test
+    public void testMatchesDNSMessageEncoding() {
+        List<DNSAnswer> answers = rrset("example.com", 2);
+        DNSResponseBuilder builder = new DNSResponseBuilder(header.clone(), DNSResponseBuilder.MAX_UDP_SIZE);
+        builder.addQuestion(question);
+        builder.addAnswers(answers);
+        ByteBuffer built = builder.build();
+
+        DNSHeader expectedHeader = header.clone();
+        expectedHeader.setArCount((short) 0);
+        byte[] expected = new DNSMessage(expectedHeader, List.of(question), answers).toBytes();
+        byte[] actual = new byte[built.remaining()];
+        built.get(actual);
+
+        assertEquals(actual, expected, "Builder output should match DNSMessage encoding");
+        assertFalse(builder.isTruncated(), "Response should not be truncated");
+    }
+
+    @Test
+    public void testTruncatesAtRRsetBoundary() {
+        // Each record is 27 bytes; 12 header + 17 question + 10 * 27 = 299, so the second RRset of 10 can't fit
+        DNSResponseBuilder builder = new DNSResponseBuilder(header.clone(), DNSResponseBuilder.MAX_UDP_SIZE);
+        builder.addQuestion(question);
+        List<DNSAnswer> answers = new ArrayList<>(rrset("example.com", 10));
+        answers.addAll(rrset("www.example.com", 10));
+        builder.addAnswers(answers);
+        builder.addAnswers(rrset("a.com", 1));
+        ByteBuffer built = builder.build();
+
+        assertTrue(built.remaining() <= DNSResponseBuilder.MAX_UDP_SIZE, "Response should fit the limit");
+        assertEquals(built.remaining(), 299, "Only the first RRset should be written");
+        assertTrue(builder.isTruncated(), "Builder should report truncation");
+
+        DNSMessage parsed = DNSMessage.fromByteBuffer(built);
+        assertTrue(parsed.getHeader().isTruncated(), "TC bit should be set");
+        assertEquals(parsed.getHeader().getQdCount(), (short) 1, "QdCount should match");
+        assertEquals(parsed.getHeader().getAnCount(), (short) 10, "AnCount should cover only the first RRset");
+        assertEquals(parsed.getAnswers().size(), 10, "Only the first RRset should be parsed");
+    }
+
+    @Test
+    public void testRRsetLargerThanLimit() {
+        DNSResponseBuilder builder = new DNSResponseBuilder(header.clone(), DNSResponseBuilder.MAX_UDP_SIZE);
+        builder.addQuestion(question);
+        builder.addAnswers(rrset("example.com", 20));
+        DNSMessage parsed = DNSMessage.fromByteBuffer(builder.build());
+
+        assertTrue(parsed.getHeader().isTruncated(), "TC bit should be set");
+        assertEquals(parsed.getAnswers().size(), 0, "An RRset is written whole or not at all");
+        assertEquals(parsed.getQuestions().size(), 1, "The question should still be present");
+    }
+
+    @Test
+    public void testStreamLimitFitsMore() {
+        DNSResponseBuilder builder = new DNSResponseBuilder(header.clone(), DNSResponseBuilder.MAX_STREAM_SIZE);
+        builder.addQuestion(question);
+        builder.addAnswers(rrset("example.com", 20));
+        DNSMessage parsed = DNSMessage.fromByteBuffer(builder.build());
+
+        assertFalse(parsed.getHeader().isTruncated(), "TC bit should not be set");
+        assertEquals(parsed.getAnswers().size(), 20, "All answers should fit");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testQuestionAfterAnswers() {
+        DNSResponseBuilder builder = new DNSResponseBuilder(header.clone(), DNSResponseBuilder.MAX_UDP_SIZE);
+        builder.addQuestion(question);
+        builder.addAnswers(rrset("example.com", 1));
+        builder.addQuestion(question);
+    }
+
+    @Test
+    public void testSetTruncatedStopsAppends() {
+        DNSResponseBuilder builder = new DNSResponseBuilder(header.clone(), DNSResponseBuilder.MAX_STREAM_SIZE);
+        builder.addQuestion(question);
+        builder.addAnswers(rrset("example.com", 1));
+        builder.setTruncated();
+        builder.addAnswers(rrset("www.example.com", 1));
+        DNSMessage parsed = DNSMessage.fromByteBuffer(builder.build());
+
+        assertTrue(parsed.getHeader().isTruncated(), "TC bit should be set");
+        assertEquals(parsed.getAnswers().size(), 1, "Answers added after setTruncated should be ignored");
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() {
+        // 200 records of 27 bytes need several doublings of the initial 512 byte buffer
+        DNSResponseBuilder builder = new DNSResponseBuilder(header.clone(), DNSResponseBuilder.MAX_STREAM_SIZE);
+        builder.addQuestion(question);
+        builder.addAnswers(rrset("example.com", 100));
+        builder.addAnswers(rrset("www.example.com", 100));
+        ByteBuffer built = builder.build();
+
+        assertEquals(built.remaining(), 12 + 17 + 100 * 27 + 100 * 31, "All records should be written once");
+        DNSMessage parsed = DNSMessage.fromByteBuffer(built);
+        assertFalse(parsed.getHeader().isTruncated(), "TC bit should not be set");
+        assertEquals(parsed.getAnswers().size(), 200, "All answers should be present");
+    }
+}
@@ -0,0 +1,184 @@
+package server;
+
+import model.DNSMessage;
+import org.testng.annotations.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import static org.testng.Assert.*;
+
+public class DNSServerTest {
+
+    private DNSServer server;
+
+    @BeforeMethod
+    public void setup() {
+        server = new DNSServer(null);
+    }
+
+    private static ByteBuffer query(int flags, int qdCount) {
+        ByteBuffer buffer = ByteBuffer.allocate(29);
+        buffer.putShort((short) 1234).putShort((short) flags).putShort((short) qdCount)
+                .putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        buffer.put(new byte[]{7, 'e', 'x', 'a', 'm', 'p', 'l', 'e', 3, 'c', 'o', 'm', 0});
+        buffer.putShort((short) 1).putShort((short) 1);
+        return buffer.flip();
+    }
+
+    @Test
+    public void testAnswersQuery() {
+        ByteBuffer response = server.answer(query(0x0100, 1), 512);
+
+        assertNotNull(response, "Query should be answered");
+        assertEquals(response.getShort(0), (short) 1234, "ID should be echoed");
+        assertEquals(response.getShort(2) & 0x800F, 0x8000, "QR should be set with no error");
+        assertEquals(response.getShort(6), (short) 1, "AnCount should be set");
+    }
+
+    @Test
+    public void testFormatError() {
+        ByteBuffer response = server.answer(query(0x0100, 40), 512);
+
+        assertNotNull(response, "Malformed query should be answered");
+        assertEquals(response.remaining(), 12, "FORMERR should be header only");
+        assertEquals(response.getShort(2) & 0x800F, 0x8001, "QR and FORMERR should be set");
+    }
+
+    @Test
+    public void testDropsResponses() {
+        assertNull(server.answer(query(0x8100, 1), 512), "Well-formed responses should be dropped");
+        assertNull(server.answer(query(0x8100, 40), 512), "Malformed responses should be dropped, not FORMERR'd");
+    }
+
+    @Test(timeOut = 30_000)
+    public void testMutatedQueriesGetValidResponses() {
+        Random random = new Random(2053);
+        byte[] seed = new byte[29];
+        query(0x0100, 1).get(seed);
+        for (int i = 0; i < 50_000; i++) {
+            byte[] packet = seed.clone();
+            int flips = 1 + random.nextInt(4);
+            for (int j = 0; j < flips; j++) {
+                packet[random.nextInt(packet.length)] = (byte) random.nextInt(256);
+            }
+
+            ByteBuffer response = server.answer(ByteBuffer.wrap(packet), 512);
+            if (response == null) {
+                continue;
+            }
+            assertTrue(response.remaining() <= 512, "Response should fit the UDP limit");
+            DNSMessage parsed = DNSMessage.fromByteBuffer(response);
+            assertEquals(parsed.getHeader().getId(), ByteBuffer.wrap(packet).getShort(), "ID should be echoed");
+        }
+    }
+
+    @Test
+    public void testDropsShortPackets() {
+        assertNull(server.answer(ByteBuffer.wrap(new byte[]{0, 1, 0}), 512), "Packets shorter than a header should be dropped");
+    }
+
+    @Test(timeOut = 10_000)
+    public void testPropagatesUpstreamTruncation() throws Exception {
+        try (DatagramSocket upstream = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            Thread resolver = new Thread(() -> {
+                try {
+                    DatagramPacket packet = new DatagramPacket(new byte[512], 512);
+                    upstream.receive(packet);
+                    // Echo the query back as a truncated response with no answers
+                    byte[] reply = Arrays.copyOf(packet.getData(), packet.getLength());
+                    reply[2] = (byte) (reply[2] | 0x82);
+                    upstream.send(new DatagramPacket(reply, reply.length, packet.getSocketAddress()));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            resolver.start();
+
+            DNSServer forwarding = new DNSServer("127.0.0.1:" + upstream.getLocalPort());
+            ByteBuffer response = forwarding.answer(query(0x0100, 1), 65_535);
+            resolver.join();
+
+            assertNotNull(response, "Query should be answered");
+            assertEquals(response.getShort(2) & 0x0200, 0x0200, "Upstream TC should be passed on");
+        }
+    }
+
+    @Test(timeOut = 10_000)
+    public void testRetriesTruncatedUpstreamOverTcp() throws Exception {
+        try (ServerSocket tcpUpstream = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             DatagramSocket udpUpstream = new DatagramSocket(tcpUpstream.getLocalPort(), InetAddress.getLoopbackAddress())) {
+            Thread resolver = new Thread(() -> {
+                try {
+                    // UDP: echo the query back as a truncated response with no answers
+                    DatagramPacket packet = new DatagramPacket(new byte[512], 512);
+                    udpUpstream.receive(packet);
+                    byte[] reply = Arrays.copyOf(packet.getData(), packet.getLength());
+                    reply[2] = (byte) (reply[2] | 0x82);
+                    udpUpstream.send(new DatagramPacket(reply, reply.length, packet.getSocketAddress()));
+
+                    // TCP: answer in full with one A record pointing back at the question name
+                    try (Socket socket = tcpUpstream.accept()) {
+                        DataInputStream in = new DataInputStream(socket.getInputStream());
+                        byte[] query = new byte[in.readUnsignedShort()];
+                        in.readFully(query);
+                        ByteBuffer full = ByteBuffer.allocate(query.length + 16);
+                        full.put(query).put(2, (byte) (query[2] | 0x80)).putShort(6, (short) 1);
+                        full.put(new byte[]{(byte) 0xC0, 12, 0, 1, 0, 1, 0, 0, 0, 60, 0, 4, 1, 2, 3, 4});
+                        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                        out.writeShort(full.position());
+                        out.write(full.array(), 0, full.position());
+                        out.flush();
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            resolver.start();
+
+            DNSServer forwarding = new DNSServer("127.0.0.1:" + tcpUpstream.getLocalPort());
+            ByteBuffer response = forwarding.answer(query(0x0100, 1), 65_535);
+            resolver.join();
+
+            assertNotNull(response, "Query should be answered");
+            assertEquals(response.getShort(2) & 0x0200, 0, "TC should be clear once the full answer was fetched");
+            assertEquals(response.getShort(6), (short) 1, "The answer fetched over TCP should be included");
+        }
+    }
+
+    @Test(timeOut = 5_000)
+    public void testUpstreamDeadlineCoversWholeRequest() throws Exception {
+        // Ten questions against a silent upstream share one 2 s deadline rather than 2 s each
+        ByteBuffer request = ByteBuffer.allocate(12 + 10 * 17);
+        request.putShort((short) 1234).putShort((short) 0x0100).putShort((short) 10)
+                .putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        for (int i = 0; i < 10; i++) {
+            request.put(new byte[]{7, 'e', 'x', 'a', 'm', 'p', 'l', 'e', 3, 'c', 'o', 'm', 0});
+            request.putShort((short) 1).putShort((short) 1);
+        }
+        try (DatagramSocket upstream = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            DNSServer forwarding = new DNSServer("127.0.0.1:" + upstream.getLocalPort());
+            ByteBuffer response = forwarding.answer(request.flip(), 512);
+
+            assertNotNull(response, "Query should still be answered when upstream is silent");
+            assertEquals(response.getShort(6), (short) 0, "No answers should be included");
+        }
+    }
+
+    @Test(timeOut = 10_000)
+    public void testUpstreamTimeout() throws Exception {
+        try (DatagramSocket upstream = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            DNSServer forwarding = new DNSServer("127.0.0.1:" + upstream.getLocalPort());
+            ByteBuffer response = forwarding.answer(query(0x0100, 1), 512);
+
+            assertNotNull(response, "Query should still be answered when upstream is silent");
+            assertEquals(response.getShort(6), (short) 0, "No answers should be included");
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package server;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+
+/**
+ * Generates a throwaway self-signed key store for localhost with the JDK's keytool, and a client context
+ * that trusts it.
+ */
+final class TestKeyStores {
+    static final String PASSWORD = "changeit";
+
+    private TestKeyStores() {
+    }
+
+    static Path generate() throws Exception {
+        Path keyStore = Files.createTempDirectory("dns-tls").resolve("server.p12");
+        keyStore.toFile().deleteOnExit();
+        keyStore.getParent().toFile().deleteOnExit();
+        String keytool = Path.of(System.getProperty("java.home"), "bin", "keytool").toString();
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "dns",
+                "-keyalg", "EC", "-groupname", "secp256r1", "-dname", "CN=localhost",
+                "-ext", "san=dns:localhost,ip:127.0.0.1", "-validity", "1",
+                "-storetype", "PKCS12", "-keystore", keyStore.toString(), "-storepass", PASSWORD)
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes());
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("keytool failed: " + output);
+        }
+        return keyStore;
+    }
+
+    static SSLContext clientContext(Path keyStore) throws Exception {
+        KeyStore trusted = KeyStore.getInstance(new File(keyStore.toString()), PASSWORD.toCharArray());
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(trusted);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, trustManagerFactory.getTrustManagers(), null);
+        return context;
+    }
+}
@@ -0,0 +1,135 @@
+package server;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reports DoT/DoH handshake cost and per-query throughput against a locally generated self-signed certificate.
+ * Run with: mvn -B test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.TlsBenchmark
+ */
+public class TlsBenchmark {
+    private static final int HANDSHAKES = 50;
+    private static final int QUERIES = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        Path keyStore = TestKeyStores.generate();
+        SSLContext serverContext = TlsContexts.fromKeyStore(keyStore.toString(), TestKeyStores.PASSWORD);
+        DNSServer dnsServer = new DNSServer(null);
+        dnsServer.warmUp();
+        DoTServer dotServer = new DoTServer(dnsServer, serverContext, 0);
+        dotServer.start();
+        DoHServer dohServer = new DoHServer(dnsServer, serverContext, 0);
+        dohServer.start();
+        try {
+            // A fresh client context has an empty session cache, so every handshake is a full one.
+            long[] full = new long[HANDSHAKES];
+            int fullResumed = 0;
+            for (int i = 0; i < HANDSHAKES; i++) {
+                Handshake handshake = handshake(TestKeyStores.clientContext(keyStore), dotServer.getPort());
+                full[i] = handshake.micros();
+                fullResumed += handshake.resumed() ? 1 : 0;
+            }
+            // Reusing one client context lets the JDK resume the session from the ticket it got on the last one.
+            SSLContext resumingContext = TestKeyStores.clientContext(keyStore);
+            handshake(resumingContext, dotServer.getPort());
+            long[] resumed = new long[HANDSHAKES];
+            int resumedCount = 0;
+            for (int i = 0; i < HANDSHAKES; i++) {
+                Handshake handshake = handshake(resumingContext, dotServer.getPort());
+                resumed[i] = handshake.micros();
+                resumedCount += handshake.resumed() ? 1 : 0;
+            }
+            System.out.printf("Full handshake:    median %d us, p90 %d us (%d/%d resumed)%n",
+                    percentile(full, 50), percentile(full, 90), fullResumed, HANDSHAKES);
+            System.out.printf("Resumed handshake: median %d us, p90 %d us (%d/%d resumed)%n",
+                    percentile(resumed, 50), percentile(resumed, 90), resumedCount, HANDSHAKES);
+
+            System.out.printf("DoT: %.0f queries/s on one connection%n", dotQueriesPerSecond(resumingContext, dotServer.getPort()));
+            System.out.printf("DoH: %.0f queries/s on one connection%n", dohQueriesPerSecond(resumingContext, dohServer.getPort()));
+        } finally {
+            dotServer.stop();
+            dohServer.stop();
+        }
+    }
+
+    private static byte[] query() {
+        ByteBuffer buffer = ByteBuffer.allocate(29);
+        buffer.putShort((short) 1).putShort((short) 0x0100).putShort((short) 1)
+                .putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        buffer.put(new byte[]{7, 'e', 'x', 'a', 'm', 'p', 'l', 'e', 3, 'c', 'o', 'm', 0});
+        buffer.putShort((short) 1).putShort((short) 1);
+        return buffer.array();
+    }
+
+    private record Handshake(long micros, boolean resumed) {
+    }
+
+    // Times the handshake, then sends a query and reads the reply before closing: under TLS 1.3 the client
+    // only caches the session once it has read the server's post-handshake NewSessionTicket.
+    private static Handshake handshake(SSLContext context, int port) throws Exception {
+        long startMillis = System.currentTimeMillis();
+        Thread.sleep(2);
+        long start = System.nanoTime();
+        try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket("localhost", port)) {
+            socket.startHandshake();
+            long micros = (System.nanoTime() - start) / 1_000;
+
+            byte[] query = query();
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.writeShort(query.length);
+            out.write(query);
+            out.flush();
+            in.readFully(new byte[in.readUnsignedShort()]);
+            // A resumed session was created on an earlier connection, before this one started.
+            return new Handshake(micros, socket.getSession().getCreationTime() < startMillis);
+        }
+    }
+
+    private static double dotQueriesPerSecond(SSLContext context, int port) throws Exception {
+        byte[] query = query();
+        try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket("localhost", port)) {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            long start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                out.writeShort(query.length);
+                out.write(query);
+                out.flush();
+                in.readFully(new byte[in.readUnsignedShort()]);
+            }
+            return QUERIES / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private static double dohQueriesPerSecond(SSLContext context, int port) throws Exception {
+        HttpClient client = HttpClient.newBuilder().sslContext(context).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("https://localhost:" + port + "/dns-query"))
+                .header("Content-Type", "application/dns-message")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(query()))
+                .build();
+        int queries = QUERIES / 10;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        }
+        return queries / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static long percentile(long[] samples, int p) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.max((int) Math.ceil(p / 100.0 * sorted.length) - 1, 0)];
+    }
+}
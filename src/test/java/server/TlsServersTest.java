@@ -0,0 +1,200 @@
+package server;
+
+import org.testng.annotations.*;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.testng.Assert.*;
+
+public class TlsServersTest {
+
+    private Path keyStore;
+    private SSLContext clientContext;
+    private DoTServer dotServer;
+    private DoHServer dohServer;
+    private HttpClient httpClient;
+
+    @BeforeClass
+    public void startServers() throws Exception {
+        keyStore = TestKeyStores.generate();
+        SSLContext serverContext = TlsContexts.fromKeyStore(keyStore.toString(), TestKeyStores.PASSWORD);
+        clientContext = TestKeyStores.clientContext(keyStore);
+
+        DNSServer dnsServer = new DNSServer(null);
+        dotServer = new DoTServer(dnsServer, serverContext, 0);
+        dotServer.start();
+        dohServer = new DoHServer(dnsServer, serverContext, 0);
+        dohServer.start();
+        httpClient = HttpClient.newBuilder().sslContext(clientContext).build();
+    }
+
+    @AfterClass
+    public void stopServers() {
+        dotServer.stop();
+        dohServer.stop();
+    }
+
+    private static byte[] query(int id) {
+        ByteBuffer buffer = ByteBuffer.allocate(29);
+        buffer.putShort((short) id).putShort((short) 0x0100).putShort((short) 1)
+                .putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        buffer.put(new byte[]{7, 'e', 'x', 'a', 'm', 'p', 'l', 'e', 3, 'c', 'o', 'm', 0});
+        buffer.putShort((short) 1).putShort((short) 1);
+        return buffer.array();
+    }
+
+    private static void assertAnswers(byte[] response, int id) {
+        ByteBuffer buffer = ByteBuffer.wrap(response);
+        assertEquals(buffer.getShort(0), (short) id, "ID should be echoed");
+        assertEquals(buffer.getShort(2) & 0x800F, 0x8000, "QR should be set with no error");
+        assertEquals(buffer.getShort(6), (short) 1, "AnCount should be set");
+    }
+
+    private SSLSocket connectDoT() throws Exception {
+        SSLSocket socket = (SSLSocket) clientContext.getSocketFactory().createSocket("localhost", dotServer.getPort());
+        socket.setSoTimeout(5_000);
+        return socket;
+    }
+
+    private URI dohUri(String pathAndQuery) {
+        return URI.create("https://localhost:" + dohServer.getPort() + pathAndQuery);
+    }
+
+    @Test
+    public void testDoTQueriesShareConnection() throws Exception {
+        try (SSLSocket socket = connectDoT()) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            for (int id = 1; id <= 3; id++) {
+                byte[] query = query(id);
+                out.writeShort(query.length);
+                out.write(query);
+                out.flush();
+
+                byte[] response = new byte[in.readUnsignedShort()];
+                in.readFully(response);
+                assertAnswers(response, id);
+            }
+        }
+    }
+
+    @Test
+    public void testDoTClosesOnEOF() throws Exception {
+        try (SSLSocket socket = connectDoT()) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] query = query(7);
+            out.writeShort(query.length);
+            out.write(query);
+            out.flush();
+            in.readFully(new byte[in.readUnsignedShort()]);
+
+            socket.shutdownOutput();
+            assertEquals(in.read(), -1, "Server should close the connection once the client is done");
+        }
+    }
+
+    // Connects with a fresh or shared client context and sends one query, reading the reply so that the client
+    // also receives the TLS 1.3 session ticket. Returns true if the handshake resumed an earlier session.
+    private boolean connectAndQuery(SSLContext context) throws Exception {
+        long beforeConnect = System.currentTimeMillis();
+        Thread.sleep(5);
+        try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket("localhost", dotServer.getPort())) {
+            socket.setSoTimeout(5_000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] query = query(21);
+            out.writeShort(query.length);
+            out.write(query);
+            out.flush();
+            in.readFully(new byte[in.readUnsignedShort()]);
+            // A resumed session was created on an earlier connection, before this one started.
+            return socket.getSession().getCreationTime() < beforeConnect;
+        }
+    }
+
+    @Test
+    public void testDoTSessionResumption() throws Exception {
+        SSLContext resumingContext = TestKeyStores.clientContext(keyStore);
+
+        assertFalse(connectAndQuery(resumingContext), "First connection should do a full handshake");
+        assertTrue(connectAndQuery(resumingContext), "Second connection should resume the session");
+    }
+
+    @Test
+    public void testDoHGet() throws Exception {
+        String dns = Base64.getUrlEncoder().withoutPadding().encodeToString(query(11));
+        HttpResponse<byte[]> response = httpClient.send(
+                HttpRequest.newBuilder(dohUri("/dns-query?dns=" + dns)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(response.statusCode(), 200, "GET should succeed");
+        assertEquals(response.headers().firstValue("Content-Type").orElse(null), "application/dns-message",
+                "Content type should be set");
+        assertAnswers(response.body(), 11);
+    }
+
+    @Test
+    public void testDoHPost() throws Exception {
+        HttpResponse<byte[]> response = httpClient.send(
+                HttpRequest.newBuilder(dohUri("/dns-query"))
+                        .header("Content-Type", "application/dns-message")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(query(12)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(response.statusCode(), 200, "POST should succeed");
+        assertAnswers(response.body(), 12);
+    }
+
+    @Test
+    public void testDoHRejectsOtherMethods() throws Exception {
+        HttpResponse<Void> response = httpClient.send(
+                HttpRequest.newBuilder(dohUri("/dns-query"))
+                        .PUT(HttpRequest.BodyPublishers.ofByteArray(query(13)))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+
+        assertEquals(response.statusCode(), 405, "Only GET and POST should be allowed");
+    }
+
+    @Test
+    public void testDoHRejectsBadDnsParameter() throws Exception {
+        HttpResponse<Void> response = httpClient.send(
+                HttpRequest.newBuilder(dohUri("/dns-query?dns=***")).build(),
+                HttpResponse.BodyHandlers.discarding());
+
+        assertEquals(response.statusCode(), 400, "Invalid base64url should be rejected");
+    }
+
+    @Test
+    public void testDoHRejectsOversizedBody() throws Exception {
+        HttpResponse<Void> response = httpClient.send(
+                HttpRequest.newBuilder(dohUri("/dns-query"))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(new byte[65_536]))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+
+        assertEquals(response.statusCode(), 400, "Bodies over 65535 bytes should be rejected");
+    }
+
+    @Test
+    public void testDoHRejectsOtherPaths() throws Exception {
+        String dns = Base64.getUrlEncoder().withoutPadding().encodeToString(query(14));
+        HttpResponse<Void> response = httpClient.send(
+                HttpRequest.newBuilder(dohUri("/dns-query-anything?dns=" + dns)).build(),
+                HttpResponse.BodyHandlers.discarding());
+
+        assertEquals(response.statusCode(), 404, "Only the exact path should be served");
+    }
+}